@@ -0,0 +1,46 @@
+package edu.curtin.krados.comp3003.assignment1;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+
+/**
+ * A quick check of how many bytes a single comparison allocates, for when JMH isn't available. Counts the bytes the
+ * current thread allocates across many loadTarget() and calcSimilarity() calls, after warming up the scratch buffers
+ * and the JIT. Run with "./gradlew allocationCheck".
+ */
+public class AllocationCheck
+{
+    private static final int PRIMARY_LENGTH = 4000;
+    private static final int TARGET_LENGTH = 100;
+    private static final int NUM_TARGETS = 3;
+    private static final int NUM_COMPARISONS = 20000;
+    private static final int NUM_ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception
+    {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        Path[] files = ComparisonFixture.create(PRIMARY_LENGTH, TARGET_LENGTH, NUM_TARGETS);
+        ComparisonScratch scratch = ComparisonScratch.get();
+        scratch.loadPrimary(files[0]);
+
+        //The first round doubles as warm-up, so only the later rounds reflect the steady state
+        double totalSimilarity = 0.0;
+        for (int round = 0; round < NUM_ROUNDS; round++)
+        {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int ii = 0; ii < NUM_COMPARISONS; ii++)
+            {
+                scratch.loadTarget(files[1 + ii % NUM_TARGETS]);
+                totalSimilarity += scratch.calcSimilarity();
+            }
+            long after = threads.getThreadAllocatedBytes(threadId);
+            System.out.printf("Round %d: %.1f bytes allocated per comparison%n",
+                    round, (double)(after - before) / NUM_COMPARISONS);
+        }
+        //Printed so that the comparisons can't be optimised away
+        System.out.println("Mean similarity: " + totalSimilarity / (NUM_ROUNDS * NUM_COMPARISONS));
+    }
+}
@@ -0,0 +1,58 @@
+package edu.curtin.krados.comp3003.assignment1;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single comparison as FileComparer makes it: reading the next target file into the thread's scratch
+ * buffers and comparing it with the already loaded primary file. Run with "./gradlew jmh", which enables the gc
+ * profiler so that the allocation rate per comparison (gc.alloc.rate.norm) is reported alongside the timing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComparisonBenchmark
+{
+    private static final int NUM_TARGETS = 3;
+
+    @Param({ "1000", "4000" })
+    public int primaryLength;
+
+    @Param({ "100", "1000" })
+    public int targetLength;
+
+    private Path[] targets;
+    private ComparisonScratch scratch;
+    private int nextTarget;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        Path[] files = ComparisonFixture.create(primaryLength, targetLength, NUM_TARGETS);
+        targets = new Path[NUM_TARGETS];
+        System.arraycopy(files, 1, targets, 0, NUM_TARGETS);
+
+        scratch = ComparisonScratch.get();
+        scratch.loadPrimary(files[0]);
+    }
+
+    @Benchmark
+    public double loadAndCompare() throws IOException
+    {
+        scratch.loadTarget(targets[nextTarget]);
+        nextTarget = (nextTarget + 1) % NUM_TARGETS;
+        return scratch.calcSimilarity();
+    }
+
+    @Benchmark
+    public double compareOnly()
+    {
+        return scratch.calcSimilarity();
+    }
+}
@@ -0,0 +1,47 @@
+package edu.curtin.krados.comp3003.assignment1;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates the files that the comparison benchmarks read, so that results don't depend on files outside the project.
+ */
+public class ComparisonFixture
+{
+    private static final String[] WORDS = { "the", "file", "compare", "similar", "text", "thread", "result",
+            "queue", "length", "common", "sequence", "public", "class", "return", "value", "index" };
+
+    /**
+     * Writes one primary file and several target files into a new temporary directory. Returns the primary file
+     * first, followed by the targets.
+     */
+    public static Path[] create(int primaryLength, int targetLength, int numTargets) throws IOException
+    {
+        //A fixed seed keeps the files, and so the measurements, the same from run to run
+        Random random = new Random(3003);
+        Path directory = Files.createTempDirectory("comparison-benchmark");
+        directory.toFile().deleteOnExit();
+
+        Path[] files = new Path[numTargets + 1];
+        for (int ii = 0; ii < files.length; ii++)
+        {
+            files[ii] = directory.resolve(ii + ".txt");
+            Files.writeString(files[ii], randomText(random, ii == 0 ? primaryLength : targetLength));
+            files[ii].toFile().deleteOnExit();
+        }
+        return files;
+    }
+
+    private static String randomText(Random random, int length)
+    {
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length)
+        {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+}
@@ -0,0 +1,207 @@
+package edu.curtin.krados.comp3003.assignment1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Set;
+
+/**
+ * Per-thread, growable scratch buffers for reading text files and measuring their similarity, so that comparing a
+ * pair of files doesn't allocate new arrays once the buffers have grown to fit the largest file seen by the thread.
+ */
+public class ComparisonScratch
+{
+    private static final int INITIAL_CAPACITY = 8192;
+    private static final ThreadLocal<ComparisonScratch> SCRATCH = ThreadLocal.withInitial(ComparisonScratch::new);
+    //Passed explicitly so that opening a file doesn't build new option and varargs arrays each time
+    private static final Set<OpenOption> READ_OPTIONS = Set.of(StandardOpenOption.READ);
+    private static final FileAttribute<?>[] NO_ATTRIBUTES = new FileAttribute<?>[0];
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    private CharBuffer primary = CharBuffer.allocate(INITIAL_CAPACITY);
+    private CharBuffer target = CharBuffer.allocate(INITIAL_CAPACITY);
+    //Kept apart from target so that comparing against a String doesn't disturb a file loaded by loadTarget()
+    private char[] stringTarget = new char[INITIAL_CAPACITY];
+
+    private int[] previousRow = new int[INITIAL_CAPACITY];
+    private int[] currentRow = new int[INITIAL_CAPACITY];
+
+    private ComparisonScratch() { }
+
+    /**
+     * Retrieves the scratch buffers belonging to the calling thread.
+     */
+    public static ComparisonScratch get()
+    {
+        return SCRATCH.get();
+    }
+
+    public void loadPrimary(Path file) throws IOException
+    {
+        primary = decode(file, primary);
+    }
+
+    public void loadTarget(Path file) throws IOException
+    {
+        target = decode(file, target);
+    }
+
+    /**
+     * Measures the similarity of the currently loaded primary and target files.
+     */
+    public double calcSimilarity()
+    {
+        return calcSimilarity(primary.array(), primary.position(), target.array(), target.position());
+    }
+
+    /**
+     * Measures the similarity of a file against a String, copying the String into a buffer of this thread's own so
+     * that compactly stored contents can be compared without allocating.
+     */
+    public double calcSimilarity(char[] file1, int length1, String file2)
+    {
+        int length2 = file2.length();
+        if (stringTarget.length < length2)
+        {
+            stringTarget = new char[grow(stringTarget.length, length2)];
+        }
+        file2.getChars(0, length2, stringTarget, 0);
+        return calcSimilarity(file1, length1, stringTarget, length2);
+    }
+
+    /**
+     * Implementation of the LCS Dynamic Programming Algorithm for determining how similar two files (i.e. strings) are.
+     * Based on pseudocode provided in assignment specification.
+     *
+     * Only the length of the longest common subsequence is needed, so just two rows of subsolutions are kept rather
+     * than the full table, with the shorter file taking the columns to keep those rows small.
+     */
+    public double calcSimilarity(char[] file1, int length1, char[] file2, int length2)
+    {
+        if (length1 + length2 == 0)
+        {
+            return 0.0;
+        }
+        if (length2 > length1)
+        {
+            char[] tempFile = file1;
+            file1 = file2;
+            file2 = tempFile;
+            int tempLength = length1;
+            length1 = length2;
+            length2 = tempLength;
+        }
+
+        int columns = length2 + 1;
+        if (previousRow.length < columns)
+        {
+            //Only replace the rows once both have been allocated, so an OutOfMemoryError leaves them matching in size
+            int newCapacity = grow(previousRow.length, columns);
+            int[] newPreviousRow = new int[newCapacity];
+            int[] newCurrentRow = new int[newCapacity];
+            previousRow = newPreviousRow;
+            currentRow = newCurrentRow;
+        }
+        int[] previous = previousRow;
+        int[] current = currentRow;
+
+        //Fill first row of subsolutions with zeros; the first column is zeroed as each row is started
+        for (int mm = 0; mm < columns; mm++)
+        {
+            previous[mm] = 0;
+        }
+
+        for (int ii = 1; ii <= length1; ii++)
+        {
+            char primaryChar = file1[ii - 1];
+            current[0] = 0;
+            for (int jj = 1; jj <= length2; jj++)
+            {
+                if (primaryChar == file2[jj - 1])
+                {
+                    current[jj] = previous[jj - 1] + 1;
+                }
+                else if (previous[jj] > current[jj - 1])
+                {
+                    current[jj] = previous[jj];
+                }
+                else
+                {
+                    current[jj] = current[jj - 1];
+                }
+            }
+            int[] temp = previous;
+            previous = current;
+            current = temp;
+        }
+
+        int matches = previous[length2];
+        return (double)(matches * 2) / (double)(length1 + length2);
+    }
+
+    /**
+     * Reads and decodes a UTF-8 file into the given buffer, returning a larger replacement buffer if it didn't fit. The
+     * decoded length is left as the buffer's position.
+     */
+    private CharBuffer decode(Path file, CharBuffer chars) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, READ_OPTIONS, NO_ATTRIBUTES))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8)
+            {
+                throw new OutOfMemoryError("File too large to compare: " + file);
+            }
+            if (bytes.capacity() < size)
+            {
+                bytes = ByteBuffer.allocate(grow(bytes.capacity(), (int)size));
+            }
+            bytes.clear();
+            bytes.limit((int)size);
+            while (bytes.hasRemaining() && channel.read(bytes) != -1) { }
+            bytes.flip();
+        }
+
+        //UTF-8 never decodes to more chars than it has bytes
+        if (chars.capacity() < bytes.remaining())
+        {
+            chars = CharBuffer.allocate(grow(chars.capacity(), bytes.remaining()));
+        }
+        chars.clear();
+        decoder.reset();
+        CoderResult result = decoder.decode(bytes, chars, true);
+        if (!result.isUnderflow())
+        {
+            result.throwException();
+        }
+        result = decoder.flush(chars);
+        if (!result.isUnderflow())
+        {
+            result.throwException();
+        }
+        return chars;
+    }
+
+    private static int grow(int capacity, int required)
+    {
+        int newCapacity = Math.max(capacity, 1);
+        while (newCapacity < required && newCapacity > 0)
+        {
+            newCapacity <<= 1;
+        }
+        return newCapacity > 0 ? newCapacity : required;
+    }
+}
@@ -0,0 +1,530 @@
+package edu.curtin.krados.comp3003.assignment1;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * A persistent index of already scanned text files, allowing a single new file to be compared against the whole corpus
+ * without rerunning every pairwise comparison.
+ *
+ * Each indexed file keeps its contents preloaded in memory alongside a small MinHash sketch of its character shingles.
+ * A query ranks the whole corpus by sketch similarity, then runs the exact LCS comparison on the most promising
+ * candidates across all available cores.
+ *
+ * On disk, the index is a base file holding every document plus a log file ("indexFile.log") that new or refreshed
+ * documents are appended to by commit(). Loading replays the log over the base, and the two are compacted back into a
+ * single base file once the log grows large relative to the corpus.
+ */
+public class CorpusIndex implements AutoCloseable
+{
+    public static final int DEFAULT_MAX_RESULTS = 10;
+    public static final int DEFAULT_CANDIDATE_LIMIT = 256;
+    public static final String LOG_SUFFIX = ".log";
+
+    private static final int FORMAT_MAGIC = 0x53454349;
+    private static final int LOG_MAGIC = 0x5345434c;
+    private static final int FORMAT_VERSION = 2;
+    private static final int SHINGLE_LENGTH = 5;
+    private static final int SKETCH_BINS = 64;
+    private static final int EMPTY_BIN = Integer.MAX_VALUE;
+    private static final int MIN_COMPACTION_RECORDS = 64;
+
+    private final ExecutorService comparisonService;
+    private final Map<String, Document> documents = new LinkedHashMap<>();
+    private final List<Document> uncommitted = new ArrayList<>();
+    //Guards the files on disk, and makes sure each save or commit writes the latest state in order
+    private final Object saveLock = new Object();
+    //Identifies the base file that the log belongs to; zero until this index has been loaded or saved
+    private long generation = 0;
+    private int numLogRecords = 0;
+    private boolean isLogTorn = false;
+    private volatile int candidateLimit = DEFAULT_CANDIDATE_LIMIT;
+
+    public CorpusIndex()
+    {
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        comparisonService = Executors.newFixedThreadPool(numThreads, runnable ->
+        {
+            Thread thread = new Thread(runnable, "corpus-comparison-thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets how many of the files with the most similar sketches are given the exact LCS comparison in each query. Files
+     * outside this limit are never reported, even if their LCS similarity would be above the threshold.
+     */
+    public void setCandidateLimit(int candidateLimit)
+    {
+        if (candidateLimit < 1)
+        {
+            throw new IllegalArgumentException("Candidate limit must be at least 1");
+        }
+        this.candidateLimit = candidateLimit;
+    }
+
+    public synchronized int size() { return documents.size(); }
+
+    /**
+     * Indexes every text file that FileFinder would discover within the given directory, returning how many files were
+     * newly added or refreshed. Files that couldn't be read are reported to the errors callback.
+     */
+    public int addDirectory(String directory, Consumer<String> detail, Consumer<String> errors) throws IOException
+    {
+        int numAdded = 0;
+        for (String file : FileFinder.findTextFiles(directory, detail, errors))
+        {
+            try
+            {
+                if (add(Paths.get(file)))
+                {
+                    numAdded++;
+                }
+            }
+            catch (IOException e)
+            {
+                errors.accept("Couldn't index " + file + ": " + e.getMessage());
+            }
+        }
+        return numAdded;
+    }
+
+    /**
+     * Adds a single file to the index, or refreshes it if it has changed since it was indexed. Returns false if the
+     * file was already indexed and is unchanged. The change is kept in memory until the next commit() or save().
+     *
+     * Only files that FileFinder would compare are accepted, i.e. non-empty files with one of its text extensions.
+     */
+    public boolean add(Path file) throws IOException
+    {
+        String filename = file.toAbsolutePath().normalize().toString();
+        if (!FileFinder.isTextFile(filename))
+        {
+            throw new IOException(filename + " doesn't have a text file extension ("
+                    + String.join(", ", FileFinder.TEXT_EXTENSIONS) + ")");
+        }
+        if (Files.size(file) == 0)
+        {
+            throw new IOException(filename + " is empty");
+        }
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+
+        synchronized (this)
+        {
+            Document existing = documents.get(filename);
+            if (existing != null && existing.lastModified == lastModified)
+            {
+                return false;
+            }
+        }
+
+        //Read and sketch the file outside of the lock so that queries aren't held up
+        String contents = Files.readString(file);
+        Document document = new Document(filename, lastModified, contents, sketch(contents));
+        synchronized (this)
+        {
+            documents.put(filename, document);
+            uncommitted.add(document);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the indexed files most similar to the given file, ordered from most to least similar. Only matches above
+     * FileComparerUI.MIN_SIMILARITY are returned, and the file itself is skipped if it is already indexed.
+     */
+    public List<ComparisonResult> query(Path file, int maxResults) throws IOException, InterruptedException
+    {
+        if (maxResults < 1)
+        {
+            throw new IllegalArgumentException("The maximum number of results must be at least 1");
+        }
+        String filename = file.toAbsolutePath().normalize().toString();
+        String queryContents = Files.readString(file);
+        char[] contents = queryContents.toCharArray();
+        int[] querySketch = sketch(queryContents);
+        int limit = candidateLimit;
+
+        Document[] snapshot;
+        synchronized (this)
+        {
+            snapshot = documents.values().toArray(new Document[0]);
+        }
+
+        //Rank the corpus by estimated similarity so that the exact comparison is only run on likely matches
+        double[] estimates = new double[snapshot.length];
+        List<Integer> ranking = new ArrayList<>(snapshot.length);
+        for (int ii = 0; ii < snapshot.length; ii++)
+        {
+            if (!snapshot[ii].filename.equals(filename))
+            {
+                estimates[ii] = estimateSimilarity(querySketch, snapshot[ii].sketch);
+                ranking.add(ii);
+            }
+        }
+        ranking.sort((ii, jj) -> Double.compare(estimates[jj], estimates[ii]));
+        List<Document> candidates = new ArrayList<>(Math.min(ranking.size(), limit));
+        for (int ii = 0; ii < ranking.size() && ii < limit; ii++)
+        {
+            candidates.add(snapshot[ranking.get(ii)]);
+        }
+
+        List<Callable<ComparisonResult>> tasks = new ArrayList<>(candidates.size());
+        for (Document candidate : candidates)
+        {
+            tasks.add(() ->
+            {
+                double similarity = ComparisonScratch.get().calcSimilarity(
+                        contents, contents.length, candidate.contents);
+                ComparisonResult result = null;
+                if (similarity > FileComparerUI.MIN_SIMILARITY)
+                {
+                    result = new ComparisonResult(filename, candidate.filename, similarity);
+                }
+                return result;
+            });
+        }
+
+        List<ComparisonResult> matches = new ArrayList<>();
+        for (Future<ComparisonResult> future : comparisonService.invokeAll(tasks))
+        {
+            try
+            {
+                ComparisonResult result = future.get();
+                if (result != null)
+                {
+                    matches.add(result);
+                }
+            }
+            catch (ExecutionException e)
+            {
+                throw new IOException("A comparison failed while querying " + filename, e.getCause());
+            }
+        }
+        matches.sort((result1, result2) -> Double.compare(result2.getSimilarity(), result1.getSimilarity()));
+        if (matches.size() > maxResults)
+        {
+            matches = new ArrayList<>(matches.subList(0, maxResults));
+        }
+        return matches;
+    }
+
+    /**
+     * Writes every document to a new base file and discards the log. The base file is written alongside the destination
+     * first and then atomically moved into place, so an interrupted save leaves the previous index intact.
+     */
+    public void save(Path indexFile) throws IOException
+    {
+        synchronized (saveLock)
+        {
+            Document[] snapshot;
+            synchronized (this)
+            {
+                snapshot = documents.values().toArray(new Document[0]);
+                uncommitted.clear();
+            }
+
+            Path absoluteIndex = indexFile.toAbsolutePath();
+            Path tempFile = absoluteIndex.resolveSibling(absoluteIndex.getFileName() + ".tmp");
+            //A random generation can't repeat one written by an earlier build of the same index file
+            long newGeneration;
+            do
+            {
+                newGeneration = ThreadLocalRandom.current().nextLong();
+            }
+            while (newGeneration == 0 || newGeneration == generation);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile))))
+            {
+                out.writeInt(FORMAT_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(newGeneration);
+                out.writeInt(snapshot.length);
+                for (Document document : snapshot)
+                {
+                    writeDocument(out, document);
+                }
+            }
+            Files.move(tempFile, absoluteIndex, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            //A leftover log belongs to an older generation, so it is ignored by load() even if this delete fails
+            generation = newGeneration;
+            numLogRecords = 0;
+            isLogTorn = false;
+            Files.deleteIfExists(logFile(absoluteIndex));
+        }
+    }
+
+    /**
+     * Persists the documents added or refreshed since the last commit() or save() by appending them to the log, rather
+     * than rewriting the whole index. The index is compacted with save() instead once the log holds more than a quarter
+     * as many records as there are documents, or if nothing can safely be appended to the log: this index hasn't been
+     * loaded or saved yet, or the log ended with a partly written record when it was loaded.
+     */
+    public void commit(Path indexFile) throws IOException
+    {
+        synchronized (saveLock)
+        {
+            Document[] pending;
+            int numDocuments;
+            synchronized (this)
+            {
+                pending = uncommitted.toArray(new Document[0]);
+                uncommitted.clear();
+                numDocuments = documents.size();
+            }
+
+            Path absoluteIndex = indexFile.toAbsolutePath();
+            if (generation == 0 || isLogTorn || !Files.exists(absoluteIndex)
+                    || numLogRecords + pending.length > Math.max(MIN_COMPACTION_RECORDS, numDocuments / 4))
+            {
+                save(absoluteIndex);
+            }
+            else if (pending.length > 0)
+            {
+                try
+                {
+                    appendToLog(logFile(absoluteIndex), pending);
+                    numLogRecords += pending.length;
+                }
+                catch (IOException e)
+                {
+                    //Keep the documents pending so that a later commit can retry them
+                    synchronized (this)
+                    {
+                        uncommitted.addAll(0, Arrays.asList(pending));
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an index previously written by save() and commit(), replaying any log records over the base file. Nothing
+     * is written here; a partly written record at the end of the log is skipped and only repaired by the next commit().
+     */
+    public static CorpusIndex load(Path indexFile) throws IOException
+    {
+        CorpusIndex index = new CorpusIndex();
+        Path absoluteIndex = indexFile.toAbsolutePath();
+        try
+        {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(absoluteIndex))))
+            {
+                if (in.readInt() != FORMAT_MAGIC || in.readInt() != FORMAT_VERSION)
+                {
+                    throw new IOException(indexFile + " is not a corpus index, or was written by another version");
+                }
+                index.generation = in.readLong();
+                long indexSize = Files.size(absoluteIndex);
+                int numDocuments = in.readInt();
+                for (int ii = 0; ii < numDocuments; ii++)
+                {
+                    Document document = readDocument(in, indexFile, indexSize);
+                    index.documents.put(document.filename, document);
+                }
+            }
+
+            //Anything appended after a partly written record couldn't be read back, so commit() has to rewrite instead
+            index.isLogTorn = index.replayLog(logFile(absoluteIndex));
+        }
+        catch (IOException e)
+        {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    @Override
+    public void close()
+    {
+        comparisonService.shutdownNow();
+    }
+
+    private static Path logFile(Path indexFile)
+    {
+        return indexFile.resolveSibling(indexFile.getFileName() + LOG_SUFFIX);
+    }
+
+    private void appendToLog(Path logFile, Document[] pending) throws IOException
+    {
+        //Start a fresh log if there isn't one for the current generation of the base file
+        boolean isCurrentLog = false;
+        if (Files.exists(logFile) && Files.size(logFile) > 0)
+        {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(logFile)))
+            {
+                isCurrentLog = in.readInt() == LOG_MAGIC && in.readInt() == FORMAT_VERSION
+                        && in.readLong() == generation;
+            }
+            catch (EOFException e)
+            {
+                isCurrentLog = false;
+            }
+        }
+
+        OpenOption[] options = isCurrentLog
+                ? new OpenOption[] { StandardOpenOption.APPEND }
+                : new OpenOption[] { StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                     StandardOpenOption.WRITE };
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(logFile, options))))
+        {
+            if (!isCurrentLog)
+            {
+                out.writeInt(LOG_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(generation);
+            }
+            for (Document document : pending)
+            {
+                writeDocument(out, document);
+            }
+        }
+    }
+
+    /**
+     * Applies the log records belonging to this index's generation, returning true if the log ended part way through
+     * a record.
+     */
+    private boolean replayLog(Path logFile) throws IOException
+    {
+        boolean isTorn = false;
+        if (Files.exists(logFile))
+        {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile))))
+            {
+                if (in.readInt() == LOG_MAGIC && in.readInt() == FORMAT_VERSION && in.readLong() == generation)
+                {
+                    long logSize = Files.size(logFile);
+                    while (in.available() > 0)
+                    {
+                        Document document = readDocument(in, logFile, logSize);
+                        documents.put(document.filename, document);
+                        numLogRecords++;
+                    }
+                }
+            }
+            catch (EOFException e)
+            {
+                isTorn = true;
+            }
+        }
+        return isTorn;
+    }
+
+    private static void writeDocument(DataOutputStream out, Document document) throws IOException
+    {
+        out.writeUTF(document.filename);
+        out.writeLong(document.lastModified);
+        byte[] contentBytes = document.contents.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(contentBytes.length);
+        out.write(contentBytes);
+        for (int bin : document.sketch)
+        {
+            out.writeInt(bin);
+        }
+    }
+
+    private static Document readDocument(DataInputStream in, Path source, long sourceSize) throws IOException
+    {
+        String filename = in.readUTF();
+        long lastModified = in.readLong();
+        int contentLength = in.readInt();
+        //Contents can't be longer than the file holding them, so anything else means the length itself is damaged
+        if (contentLength < 0 || contentLength > sourceSize)
+        {
+            throw new IOException("Corrupt index " + source + ": invalid length " + contentLength + " for " + filename);
+        }
+        byte[] contentBytes = new byte[contentLength];
+        in.readFully(contentBytes);
+        int[] sketch = new int[SKETCH_BINS];
+        for (int ii = 0; ii < SKETCH_BINS; ii++)
+        {
+            sketch[ii] = in.readInt();
+        }
+        return new Document(filename, lastModified, new String(contentBytes, StandardCharsets.UTF_8), sketch);
+    }
+
+    /**
+     * Builds a one-permutation MinHash sketch of a file's character shingles: each shingle is hashed once, the hash
+     * picks a bin, and each bin keeps the smallest hash value it has seen.
+     */
+    private static int[] sketch(String contents)
+    {
+        int[] sketch = new int[SKETCH_BINS];
+        Arrays.fill(sketch, EMPTY_BIN);
+        for (int ii = 0; ii + SHINGLE_LENGTH <= contents.length(); ii++)
+        {
+            long hash = 0;
+            for (int jj = ii; jj < ii + SHINGLE_LENGTH; jj++)
+            {
+                hash = hash * 31 + contents.charAt(jj);
+            }
+            hash = mix(hash);
+            int bin = (int)((hash >>> 32) % SKETCH_BINS);
+            //Keep the value below EMPTY_BIN so that a filled bin can always be told apart from an empty one
+            int value = (int)(hash & 0x7ffffffeL);
+            if (value < sketch[bin])
+            {
+                sketch[bin] = value;
+            }
+        }
+        return sketch;
+    }
+
+    /**
+     * Estimates the Jaccard similarity of two files' shingle sets from their sketches.
+     */
+    private static double estimateSimilarity(int[] sketch1, int[] sketch2)
+    {
+        int numMatching = 0;
+        int numFilled = 0;
+        for (int ii = 0; ii < SKETCH_BINS; ii++)
+        {
+            if (sketch1[ii] != EMPTY_BIN || sketch2[ii] != EMPTY_BIN)
+            {
+                numFilled++;
+                if (sketch1[ii] == sketch2[ii])
+                {
+                    numMatching++;
+                }
+            }
+        }
+        return numFilled == 0 ? 0.0 : (double)numMatching / (double)numFilled;
+    }
+
+    //Finalisation step of the SplitMix64 generator, used to spread shingle hashes evenly over the bins
+    private static long mix(long hash)
+    {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * An indexed file, its preloaded contents and its sketch. Contents are kept as a String so that the JVM's compact
+     * strings store typical ASCII submissions at one byte per character.
+     */
+    private static class Document
+    {
+        private final String filename;
+        private final long lastModified;
+        private final String contents;
+        private final int[] sketch;
+
+        private Document(String filename, long lastModified, String contents, int[] sketch)
+        {
+            this.filename = filename;
+            this.lastModified = lastModified;
+            this.contents = contents;
+            this.sketch = sketch;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package edu.curtin.krados.comp3003.assignment1;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves queries against a CorpusIndex over a local socket, under its own thread, so that the index only has to be
+ * loaded once. Each connection sends one command per line and receives a response terminated by an empty line:
+ *
+ *   QUERY path [maxResults]  - lists the best matches for a file as "file1,file2,similarity" lines
+ *   ADD path                 - indexes a file, or every text file within a directory, and commits the index;
+ *                              files that couldn't be indexed are listed as "FAILED reason" lines before "ADDED n"
+ *   SIZE                     - reports how many files are indexed
+ *
+ * A command that fails is answered with a single "ERROR reason" line.
+ */
+public class CorpusQueryServer
+{
+    private Thread thread;
+    private ServerSocket serverSocket;
+    private ExecutorService connectionService = Executors.newCachedThreadPool();
+
+    private CorpusIndex index;
+    private Path indexFile;
+    private int port;
+
+    public CorpusQueryServer(CorpusIndex index, Path indexFile, int port)
+    {
+        this.index = index;
+        this.indexFile = indexFile;
+        this.port = port;
+    }
+
+    public void start() throws IOException
+    {
+        //Only accept connections from this machine
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        thread = new Thread(this::acceptConnections, "corpus-query-server-thread");
+        thread.start();
+    }
+
+    public void stop()
+    {
+        if (thread == null)
+        {
+            throw new IllegalArgumentException("Server thread doesn't exist");
+        }
+
+        try
+        {
+            serverSocket.close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Couldn't close the query server socket: " + e.getMessage());
+        }
+        connectionService.shutdownNow();
+        thread.interrupt();
+        thread = null;
+    }
+
+    public int getPort() { return serverSocket.getLocalPort(); }
+
+    /**
+     * The task accepting new connections and handing each of them to the connection thread pool.
+     */
+    private void acceptConnections()
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted())
+            {
+                Socket socket = serverSocket.accept();
+                connectionService.submit(() -> handleConnection(socket));
+            }
+        }
+        catch (SocketException e)
+        {
+            //The server socket was closed by stop()
+        }
+        catch (IOException e)
+        {
+            System.err.println("The query server stopped accepting connections: " + e.getMessage());
+        }
+    }
+
+    private void handleConnection(Socket socket)
+    {
+        try (socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new BufferedWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))))
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                if (!line.isBlank())
+                {
+                    handleCommand(line.trim(), out);
+                    out.println();
+                    out.flush();
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("A query connection failed: " + e.getMessage());
+        }
+    }
+
+    private void handleCommand(String line, PrintWriter out)
+    {
+        String[] parts = line.split("\\s+", 2);
+        String command = parts[0].toUpperCase();
+        String argument = parts.length > 1 ? parts[1] : "";
+        try
+        {
+            switch (command)
+            {
+                case "QUERY":
+                    int maxResults = CorpusIndex.DEFAULT_MAX_RESULTS;
+                    //A trailing number is the result limit, unless the whole argument names an existing file
+                    int iiSpace = argument.lastIndexOf(' ');
+                    if (iiSpace > 0 && !Files.exists(Paths.get(argument)))
+                    {
+                        try
+                        {
+                            maxResults = Integer.parseInt(argument.substring(iiSpace + 1));
+                            argument = argument.substring(0, iiSpace);
+                        }
+                        catch (NumberFormatException ignored) { }
+                    }
+                    List<ComparisonResult> matches = index.query(Paths.get(argument), maxResults);
+                    for (ComparisonResult match : matches)
+                    {
+                        out.println(match.getFile1() + "," + match.getFile2() + "," + match.getSimilarity());
+                    }
+                    break;
+
+                case "ADD":
+                    Path path = Paths.get(argument);
+                    int numAdded;
+                    List<String> failures = new ArrayList<>();
+                    if (Files.isDirectory(path))
+                    {
+                        numAdded = index.addDirectory(argument, detail -> { }, failures::add);
+                    }
+                    else
+                    {
+                        numAdded = index.add(path) ? 1 : 0;
+                    }
+                    index.commit(indexFile);
+                    for (String failure : failures)
+                    {
+                        out.println("FAILED " + failure);
+                    }
+                    out.println("ADDED " + numAdded);
+                    break;
+
+                case "SIZE":
+                    out.println(index.size());
+                    break;
+
+                default:
+                    out.println("ERROR Unknown command " + parts[0]);
+            }
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            //IllegalArgumentException also covers an InvalidPathException from an unusable path
+            out.println("ERROR " + e.getMessage());
+        }
+        catch (InterruptedException e)
+        {
+            out.println("ERROR The query was interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+}
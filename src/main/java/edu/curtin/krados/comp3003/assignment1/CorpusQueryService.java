@@ -0,0 +1,139 @@
+package edu.curtin.krados.comp3003.assignment1;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Command line entry point for building a persistent CorpusIndex and comparing new files against it, without rerunning
+ * the full comparison of every file with every other file.
+ */
+public class CorpusQueryService
+{
+    private static final String USAGE = "Usage:\n"
+            + "  build <directory> <indexFile>                     index every text file within a directory\n"
+            + "  add <indexFile> <file|directory>                  add new files to an existing index\n"
+            + "  query <indexFile> <file> [max] [candidates]       list the best matches for a file\n"
+            + "  serve <indexFile> <port> [candidates]             answer QUERY/ADD/SIZE commands on a local socket\n"
+            + "\n"
+            + "candidates is how many files with the most similar sketches get the exact comparison (default "
+            + CorpusIndex.DEFAULT_CANDIDATE_LIMIT + ").\n"
+            + "Raising it finds more matches in large corpora at the cost of slower queries.";
+
+    public static void main(String[] args)
+    {
+        try
+        {
+            if (args.length < 3)
+            {
+                exitWithUsage();
+            }
+            switch (args[0])
+            {
+                case "build":
+                    build(args[1], Paths.get(args[2]));
+                    break;
+                case "add":
+                    add(Paths.get(args[1]), args[2]);
+                    break;
+                case "query":
+                    query(Paths.get(args[1]), Paths.get(args[2]),
+                            args.length > 3 ? Integer.parseInt(args[3]) : CorpusIndex.DEFAULT_MAX_RESULTS,
+                            args.length > 4 ? Integer.parseInt(args[4]) : CorpusIndex.DEFAULT_CANDIDATE_LIMIT);
+                    break;
+                case "serve":
+                    serve(Paths.get(args[1]), Integer.parseInt(args[2]),
+                            args.length > 3 ? Integer.parseInt(args[3]) : CorpusIndex.DEFAULT_CANDIDATE_LIMIT);
+                    break;
+                default:
+                    exitWithUsage();
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            System.err.println("Expected a number: " + e.getMessage());
+            exitWithUsage();
+        }
+        catch (IllegalArgumentException e)
+        {
+            //Also covers an InvalidPathException from an unusable path
+            System.err.println("Invalid argument: " + e.getMessage());
+            exitWithUsage();
+        }
+        catch (IOException e)
+        {
+            System.err.println("An error occurred: " + e.getMessage());
+            System.exit(1);
+        }
+        catch (InterruptedException e)
+        {
+            System.err.println("The query was interrupted");
+            System.exit(1);
+        }
+    }
+
+    private static void build(String directory, Path indexFile) throws IOException
+    {
+        try (CorpusIndex index = new CorpusIndex())
+        {
+            int numAdded = index.addDirectory(directory, System.out::println, System.err::println);
+            index.save(indexFile);
+            System.out.println("Indexed " + numAdded + " files into " + indexFile);
+        }
+    }
+
+    private static void add(Path indexFile, String path) throws IOException
+    {
+        try (CorpusIndex index = CorpusIndex.load(indexFile))
+        {
+            int numAdded;
+            if (Files.isDirectory(Paths.get(path)))
+            {
+                numAdded = index.addDirectory(path, System.out::println, System.err::println);
+            }
+            else
+            {
+                numAdded = index.add(Paths.get(path)) ? 1 : 0;
+            }
+            index.commit(indexFile);
+            System.out.println("Added " + numAdded + " files; " + index.size() + " files are now indexed");
+        }
+    }
+
+    private static void query(Path indexFile, Path file, int maxResults, int candidateLimit)
+            throws IOException, InterruptedException
+    {
+        try (CorpusIndex index = CorpusIndex.load(indexFile))
+        {
+            index.setCandidateLimit(candidateLimit);
+            List<ComparisonResult> matches = index.query(file, maxResults);
+            for (ComparisonResult match : matches)
+            {
+                System.out.println(match.getFile1() + "," + match.getFile2() + "," + match.getSimilarity());
+            }
+        }
+    }
+
+    private static void serve(Path indexFile, int port, int candidateLimit) throws IOException
+    {
+        CorpusIndex index = CorpusIndex.load(indexFile);
+        index.setCandidateLimit(candidateLimit);
+        CorpusQueryServer server = new CorpusQueryServer(index, indexFile, port);
+        server.start();
+        System.out.println("Serving " + index.size() + " indexed files on localhost:" + server.getPort());
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+        {
+            server.stop();
+            index.close();
+        }, "corpus-query-shutdown-thread"));
+    }
+
+    private static void exitWithUsage()
+    {
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+}
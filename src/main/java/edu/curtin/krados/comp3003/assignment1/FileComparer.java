@@ -3,7 +3,7 @@ package edu.curtin.krados.comp3003.assignment1;
 import javafx.application.Platform;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.LinkedList;
 import java.util.List;
@@ -20,6 +20,7 @@ public class FileComparer
             Runtime.getRuntime().availableProcessors());
     private BlockingQueue<ComparisonResult> comparisons = new ArrayBlockingQueue<>(1000);
     private static final ComparisonResult POISON = new ComparisonResult();
+    private static final int PROGRESS_BATCH_SIZE = 64;
 
     private String[] comparisonFiles;
     private FileComparerUI ui;
@@ -74,6 +75,13 @@ public class FileComparer
         int numFiles = comparisonFiles.length;
         int numMaxComparisons = (numFiles * numFiles - numFiles) / 2;
 
+        //Resolve each path once rather than once per comparison
+        Path[] comparisonPaths = new Path[numFiles];
+        for (int ii = 0; ii < numFiles; ii++)
+        {
+            comparisonPaths[ii] = Paths.get(comparisonFiles[ii]);
+        }
+
         /*Iterate through each file to select the primary file; the final file is excluded, as it will have already been
         * compared with all other files anyway*/
         for (int ii = 0; ii < comparisonFiles.length - 1; ii++)
@@ -84,9 +92,12 @@ public class FileComparer
             int startIndex = ii;
             Future<String> future = comparisonService.submit(() ->
             {
+                //Progress is reported in batches rather than per comparison to avoid flooding the FX thread
+                int unreportedComparisons = 0;
                 try
                 {
-                    String primaryFile = Files.readString(Paths.get(primaryFilename));
+                    ComparisonScratch scratch = ComparisonScratch.get();
+                    scratch.loadPrimary(comparisonPaths[startIndex]);
 
                     //Compare the primary file to all other target files for which a comparison hasn't been made already
                     for (int jj = startIndex + 1; jj < comparisonFiles.length; jj++)
@@ -97,21 +108,24 @@ public class FileComparer
                             //Make sure a file isn't compared with itself
                             if (!primaryFilename.equals(targetFilename) && !Thread.currentThread().isInterrupted())
                             {
-                                String targetFile = Files.readString(Paths.get(targetFilename));
-
-                                double similarity = calcSimilarity(primaryFile, targetFile);
-                                ComparisonResult newComparison = new ComparisonResult(
-                                        primaryFilename, targetFilename, similarity);
+                                scratch.loadTarget(comparisonPaths[jj]);
 
+                                double similarity = scratch.calcSimilarity();
+                                //Only results that will actually be kept are worth creating an object for
                                 if (similarity > FileComparerUI.MIN_SIMILARITY)
                                 {
+                                    ComparisonResult newComparison = new ComparisonResult(
+                                            primaryFilename, targetFilename, similarity);
                                     comparisons.put(newComparison);
+                                    Platform.runLater(() -> ui.addComparison(newComparison));
                                 }
-                                Platform.runLater(() ->
+
+                                unreportedComparisons++;
+                                if (unreportedComparisons == PROGRESS_BATCH_SIZE)
                                 {
-                                    ui.addComparison(newComparison);
-                                    ui.incrementProgress(numMaxComparisons);
-                                });
+                                    reportProgress(unreportedComparisons, numMaxComparisons);
+                                    unreportedComparisons = 0;
+                                }
                             }
                             else
                             {
@@ -134,6 +148,13 @@ public class FileComparer
                     Platform.runLater(() -> ui.showError("An error occurred while making comparisons for "
                             + primaryFilename + "\n\n" + e.getMessage()));
                 }
+                finally
+                {
+                    if (unreportedComparisons > 0)
+                    {
+                        reportProgress(unreportedComparisons, numMaxComparisons);
+                    }
+                }
                 return primaryFilename;
             });
             futures.add(future);
@@ -188,6 +209,11 @@ public class FileComparer
         }
     }
 
+    private void reportProgress(int numCompleted, int numMaxComparisons)
+    {
+        Platform.runLater(() -> ui.incrementProgress(numCompleted, numMaxComparisons));
+    }
+
     /**
      * Blocking getter method for retrieving (consuming) a ComparisonResult.
      */
@@ -201,70 +227,4 @@ public class FileComparer
         }
         return comparison;
     }
-
-    /**
-     * Implementation of the LCS Dynamic Programming Algorithm for determining how similar two files (i.e. strings) are.
-     * Based on pseudocode provided in assignment specification.
-     */
-    private double calcSimilarity(String file1, String file2)
-    {
-        int rows    = file1.length() + 1;
-        int columns = file2.length() + 1;
-        int[][] subsolutions = new int[rows][columns];
-        boolean[][] directionLeft = new boolean[rows][columns];
-
-        //Fill first row and first column of subsolutions with zeros
-        for (int mm = 0; mm < columns; mm++)
-        {
-            subsolutions[0][mm] = 0;
-        }
-        for (int nn = 0; nn < rows; nn++)
-        {
-            subsolutions[nn][0] = 0;
-        }
-
-        for (int ii = 1; ii <= file1.length(); ii++)
-        {
-            for (int jj = 1; jj <= file2.length(); jj++)
-            {
-                if (file1.charAt(ii - 1) == file2.charAt(jj - 1))
-                {
-                    subsolutions[ii][jj] = subsolutions[ii - 1][jj - 1] + 1;
-                }
-                else if (subsolutions[ii - 1][jj] > subsolutions[ii][jj - 1])
-                {
-                    subsolutions[ii][jj] = subsolutions[ii - 1][jj];
-                    directionLeft[ii][jj] = true;
-                }
-                else
-                {
-                    subsolutions[ii][jj] = subsolutions[ii][jj - 1];
-                    directionLeft[ii][jj] = false;
-                }
-            }
-        }
-
-        int matches = 0;
-        int ii = file1.length();
-        int jj = file2.length();
-
-        while (ii > 0 && jj > 0)
-        {
-            if (file1.charAt(ii - 1) == file2.charAt(jj - 1))
-            {
-                matches += 1;
-                ii -= 1;
-                jj -= 1;
-            }
-            else if (directionLeft[ii][jj])
-            {
-                ii -= 1;
-            }
-            else
-            {
-                jj -= 1;
-            }
-        }
-        return (double)(matches * 2) / (double)(file1.length() + file2.length());
-    }
 }
@@ -110,9 +110,9 @@ public class FileComparerUI extends Application
         updateProgressBar(progressBar, numMaxComparisons);
     }
 
-    public void incrementProgress(int numMaxComparisons)
+    public void incrementProgress(int numCompleted, int numMaxComparisons)
     {
-        numComparisons++;
+        numComparisons += numCompleted;
         updateProgressBar(progressBar, numMaxComparisons);
     }
 
@@ -6,6 +6,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javafx.application.Platform;
 
@@ -59,33 +60,8 @@ public class FileFinder
     {
         try
         {
-            // Recurse through the directory tree
-            Files.walkFileTree(Paths.get(searchPath), new SimpleFileVisitor<>()
-            {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
-                {
-                    String fileStr = file.toString();
-                    if (isTextFile(fileStr))
-                    {
-                        try
-                        {
-                            //Check that the file is not empty
-                            if (Files.size(file) > 0)
-                            {
-                                textFiles.add(fileStr);
-                                Platform.runLater(() -> ui.displayDetail("Found text file to compare: " + fileStr));
-                            }
-                        }
-                        catch (IOException e)
-                        {
-                            //Ignore a file whose size couldn't be checked
-                            Platform.runLater(() -> ui.displayDetail("Couldn't determine file size for " + fileStr));
-                        }
-                    }
-                    return FileVisitResult.CONTINUE;
-                }
-            });
+            Consumer<String> detail = message -> Platform.runLater(() -> ui.displayDetail(message));
+            textFiles.addAll(findTextFiles(searchPath, detail, detail));
 
             String[] comparisonFiles = textFiles.toArray(new String[0]);
 
@@ -105,12 +81,51 @@ public class FileFinder
         }
     }
 
+    /**
+     * Recursively walks through a directory to find every non-empty text file, reporting progress details and files
+     * that had to be skipped to the given callbacks. Shared by the UI's comparison process and the corpus index.
+     */
+    public static List<String> findTextFiles(String searchPath, Consumer<String> detail, Consumer<String> errors)
+            throws IOException
+    {
+        List<String> foundFiles = new LinkedList<>();
+
+        // Recurse through the directory tree
+        Files.walkFileTree(Paths.get(searchPath), new SimpleFileVisitor<>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+            {
+                String fileStr = file.toString();
+                if (isTextFile(fileStr))
+                {
+                    try
+                    {
+                        //Check that the file is not empty
+                        if (Files.size(file) > 0)
+                        {
+                            foundFiles.add(fileStr);
+                            detail.accept("Found text file to compare: " + fileStr);
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        //Ignore a file whose size couldn't be checked
+                        errors.accept("Couldn't determine file size for " + fileStr);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return foundFiles;
+    }
+
     /**
      * Checks that a file is a text file, as defined by the TEXT_EXTENSIONS constant.
      *
      * Adapted from code by EboMike, https://stackoverflow.com/a/3571239/12350950 (accessed 15 September 2021)
      */
-    private boolean isTextFile(String fileStr)
+    static boolean isTextFile(String fileStr)
     {
         boolean isTextFile = false;
 